@@ -0,0 +1,305 @@
+/* Buddhabrot.java
+ * Renders the orbit density of the Fractal equation ("Buddhabrot" style).
+ * Starting points are drawn at random, and every point visited by an orbit that
+ * escapes is counted in a 2-D histogram, which is then shaded like Fractal.
+ * The workers share a few histograms, as many as fit in half the heap and at
+ * most one per worker; each orbit is added to its histogram in one locked step,
+ * and the histograms are only summed once all workers are done.
+ */
+
+import java.awt.image.*;
+import java.util.*;
+
+public class Buddhabrot
+{
+  //the low-resolution pre-pass uses one cell for every PREPASS_DIVISOR pixels on a side
+  private static final int PREPASS_DIVISOR = 8;
+
+  //the largest fraction of the heap the histograms may take together
+  private static final double HISTOGRAM_HEAP = 0.5;
+
+  //instance variables
+  private BufferedImage image;
+  private int size, complexity, threads;
+  private double scale;
+  private long samples, seed;
+
+  //results of the last call to draw
+  private long orbitPoints, elapsed;
+
+  //constructors
+
+  //takes the size, scale, and complexity of the image, and the number of orbits to sample
+  public Buddhabrot(int sz, double sc, int comp, long samp)
+  {
+    if (sz <= 0 || comp < 1 || samp < 0)
+      throw new IllegalArgumentException("Size and complexity must be positive, samples non-negative.");
+    size = sz;
+    scale = sc;
+    complexity = comp;
+    samples = samp;
+    threads = Runtime.getRuntime().availableProcessors();
+    seed = 1;
+    image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+  }
+
+  //accessors
+
+  //getImage
+  //@return the BufferedImage associated with this instance
+  public BufferedImage getImage() {return image;}
+
+  //getThreads
+  //@return the number of worker threads used by draw
+  public int getThreads() {return threads;}
+
+  //getOrbitPoints
+  //@return the number of orbit points accumulated by the last draw
+  public long getOrbitPoints() {return orbitPoints;}
+
+  //getOrbitPointsPerSecond
+  //@return the accumulation throughput of the last draw, in orbit points per second
+  public double getOrbitPointsPerSecond()
+  {
+    return elapsed == 0 ? 0 : orbitPoints * 1e9 / elapsed;
+  }
+
+  //mutators
+
+  //setThreads
+  //@param the number of worker threads to be used by draw
+  public void setThreads(int t)
+  {
+    if (t < 1)
+      throw new IllegalArgumentException("At least one thread is required.");
+    threads = t;
+  }
+
+  //setSeed
+  //@param the seed for the random starting points, so that renders can be repeated
+  public void setSeed(long s)
+  {
+    seed = s;
+  }
+
+  //prepass
+  //renders a coarse escape-time grid over the view and turns it into sampling weights.
+  //cells whose center never escapes are worthless, except on the border of the set,
+  //where part of the cell still escapes; those borrow the weight of their neighbors
+  //@param grid the number of cells on each side
+  //@return the cumulative weights of the cells, in row-major order
+  private double[] prepass(int grid)
+  {
+    double[] weight = new double[grid * grid];
+    for (int y = 0; y < grid; y++)
+    {
+      for (int x = 0; x < grid; x++)
+      {
+        double x0 = -scale/2 + scale*(x + 0.5)/grid;
+        double y0 = -scale/2 + scale*(y + 0.5)/grid;
+        int count = Fractal.escapeTime(x0, y0, complexity, Fractal.MAX_ITERATION);
+        if (count < Fractal.MAX_ITERATION)
+          weight[y * grid + x] = 1 + count; //long orbits are the rare, interesting ones
+      }
+    }
+
+    double[] cdf = new double[weight.length];
+    double total = 0;
+    for (int y = 0; y < grid; y++)
+    {
+      for (int x = 0; x < grid; x++)
+      {
+        double w = weight[y * grid + x];
+        if (w == 0)
+        {
+          for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+              if (x + dx >= 0 && x + dx < grid && y + dy >= 0 && y + dy < grid)
+                w = Math.max(w, weight[(y + dy) * grid + x + dx]);
+        }
+        total += w;
+        cdf[y * grid + x] = total;
+      }
+    }
+    return cdf;
+  }
+
+  //draw
+  //samples the orbits across all worker threads, merges their histograms and shades the result
+  //@return a BufferedImage containing the orbit density
+  public BufferedImage draw()
+  {
+    final int grid = Math.max(1, size / PREPASS_DIVISOR);
+    final double[] cdf = prepass(grid);
+
+    //a histogram of its own for every worker would take threads * size^2 doubles,
+    //so the workers are striped over as many histograms as the heap can spare. workers
+    //sharing one add in whatever order they get its lock, so a seed only repeats a render
+    //bit for bit when every worker has a histogram of its own
+    long bytes = 8L * size * size;
+    long fit = (long) (Runtime.getRuntime().maxMemory() * HISTOGRAM_HEAP / bytes);
+    if (fit < 1)
+      throw new IllegalStateException(String.format("A %d x %d histogram needs %d MB, more than %.0f%% of the heap.",
+                                                    size, size, bytes >> 20, 100 * HISTOGRAM_HEAP));
+    double[][] histograms = new double[(int) Math.min(threads, fit)][];
+    for (int h = 0; h < histograms.length; h++)
+      histograms[h] = new double[size * size];
+
+    //only the accumulation is timed, not the pre-pass, merge or shading
+    long start = System.nanoTime();
+    final Worker[] workers = new Worker[threads];
+    Thread[] running = new Thread[threads];
+    for (int t = 0; t < threads; t++)
+    {
+      //the samples are split as evenly as possible between the workers
+      long share = samples / threads + (t < samples % threads ? 1 : 0);
+      workers[t] = new Worker(cdf, grid, share, new SplittableRandom(seed * 31 + t), histograms[t % histograms.length]);
+      running[t] = new Thread(workers[t], "buddhabrot-" + t);
+      running[t].start();
+    }
+
+    try
+    {
+      for (Thread t : running)
+        t.join();
+    }
+    catch (InterruptedException e)
+    {
+      for (Thread t : running)
+        t.interrupt();
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while drawing.", e);
+    }
+    elapsed = System.nanoTime() - start;
+
+    orbitPoints = 0;
+    for (Worker w : workers)
+    {
+      if (w.failure instanceof RuntimeException)
+        throw (RuntimeException) w.failure;
+      if (w.failure != null)
+        throw new RuntimeException(w.failure);
+      orbitPoints += w.points;
+    }
+
+    //the other histograms are summed into the first one, rather than into yet another copy
+    double[] density = histograms[0];
+    for (int h = 1; h < histograms.length; h++)
+      for (int i = 0; i < density.length; i++)
+        density[i] += histograms[h][i];
+
+    double max = 0;
+    for (double d : density)
+      max = Math.max(max, d);
+    double norm = Math.log1p(max);
+
+    for (int y = 0; y < size; y++)
+    {
+      for (int x = 0; x < size; x++)
+      {
+        //log scaling keeps the faint outer orbits visible next to the dense core
+        int gvalue = norm == 0 ? 0 : (int) (255 * Math.log1p(density[y * size + x]) / norm);
+        image.setRGB(x, y, Fractal.shade(gvalue));
+      }
+    }
+
+    //final image returned
+    return image;
+  }
+
+  //class Worker
+  //samples a share of the orbits into a histogram it may share with other workers
+  private class Worker implements Runnable
+  {
+    private final double[] cdf;
+    private final int grid;
+    private final long share;
+    private final SplittableRandom random;
+
+    //doubles, since the weights span three orders of magnitude and a float
+    //bin would start dropping the small ones long before a share is done
+    private final double[] histogram;
+    private long points;
+
+    //whatever stopped this worker early, rethrown by draw
+    private Throwable failure;
+
+    private Worker(double[] c, int g, long s, SplittableRandom r, double[] h)
+    {
+      cdf = c;
+      grid = g;
+      share = s;
+      random = r;
+      histogram = h;
+    }
+
+    public void run()
+    {
+      try
+      {
+        sample();
+      }
+      catch (Throwable e)
+      {
+        failure = e;
+      }
+    }
+
+    //sample
+    //draws the orbits of this worker's share
+    private void sample()
+    {
+      double[] path = new double[2 * Fractal.MAX_ITERATION];
+      //the pixels of one orbit, found before taking the lock on the histogram
+      int[] pixels = new int[Fractal.MAX_ITERATION];
+      double total = cdf[cdf.length - 1];
+      double cell = scale / grid;
+      //with uniform sampling every cell would be picked with probability 1 / cells;
+      //each orbit is weighted by that over its actual probability to keep the density unbiased
+      double uniform = total / cdf.length;
+
+      for (long n = 0; n < share && total > 0; n++)
+      {
+        if ((n & 0xFFFF) == 0 && Thread.currentThread().isInterrupted())
+          return;
+
+        //first cell whose cumulative weight is above the draw, which never lands on an empty cell
+        double v = random.nextDouble() * total;
+        int lo = 0, hi = cdf.length - 1;
+        while (lo < hi)
+        {
+          int mid = (lo + hi) >>> 1;
+          if (cdf[mid] > v)
+            hi = mid;
+          else
+            lo = mid + 1;
+        }
+        int i = lo;
+        double w = cdf[i] - (i > 0 ? cdf[i - 1] : 0);
+
+        double re = -scale/2 + cell * (i % grid + random.nextDouble());
+        double im = -scale/2 + cell * (i / grid + random.nextDouble());
+        int count = Fractal.orbit(re, im, complexity, Fractal.MAX_ITERATION, path);
+        if (count == Fractal.MAX_ITERATION)
+          continue; //only escaping orbits are counted
+
+        double weight = uniform / w;
+        int inside = 0;
+        for (int k = 0; k < count; k++)
+        {
+          int x = (int) Math.floor((path[2 * k] + scale/2) * size / scale);
+          int y = (int) Math.floor((path[2 * k + 1] + scale/2) * size / scale);
+          if (x >= 0 && x < size && y >= 0 && y < size)
+            pixels[inside++] = y * size + x;
+        }
+        synchronized (histogram)
+        {
+          for (int k = 0; k < inside; k++)
+            histogram[pixels[k]] += weight;
+        }
+        points += count;
+      }
+    }
+  }
+
+}
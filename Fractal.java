@@ -10,7 +10,7 @@ import java.awt.*;
 public class Fractal
 { 
   //constant allowing for a maximum of 1024 iterations
-  private static final int MAX_ITERATION = 1024;
+  static final int MAX_ITERATION = 1024;
   
   //instance variables
   private BufferedImage image;
@@ -119,6 +119,125 @@ public class Fractal
   }
   
   
+  //iterations
+  //runs the recursive checkPoint over every pixel, without coloring anything;
+  //this is the reference the faster renderers are checked against
+  //@return the iteration counts in row-major order (index y * size + x)
+  int[] iterations()
+  {
+    int[] counts = new int[size * size];
+    for (int y = 0; y < size; y++)
+    {
+      for (int x = 0; x < size; x++)
+      {
+        //same mapping as draw
+        double x0 = -scale/2 + scale*x/size;
+        double y0 = -scale/2 + scale*y/size;
+        counts[y * size + x] = checkPoint(new Complex(x0, y0), 0);
+      }
+    }
+    return counts;
+  }
+  
+  //escapeTime
+  //iterative equivalent of checkPoint working on primitive doubles, so that the
+  //faster renderers do not allocate a Complex per iteration
+  //@param re, im the starting point, comp the complexity, limit the maximum number of iterations
+  //@return an integer representing the number of iterations (max limit)
+  static int escapeTime(double re, double im, int comp, int limit)
+  {
+    if (comp < 1) //negative and zero powers are left to ComplexMath
+    {
+      Complex z = new Complex(re, im);
+      int count = 0;
+      while (ComplexMath.mag(z) <= 2.0 && count < limit)
+      {
+        z = ComplexMath.add(ComplexMath.pow(z, comp), z);
+        count++;
+      }
+      return count;
+    }
+    
+    int count = 0;
+    while (re * re + im * im <= 4.0 && count < limit)
+    {
+      //z^comp, multiplied out in the same order as ComplexMath.pow
+      double pr = re, pi = im;
+      for (int i = 1; i < comp; i++)
+      {
+        double t = re * pr - im * pi;
+        pi = re * pi + im * pr;
+        pr = t;
+      }
+      re += pr;
+      im += pi;
+      count++;
+    }
+    return count;
+  }
+  
+  //escapeTimeFloat
+  //escapeTime in single precision, for previews where the pixels are far coarser than
+  //a float can resolve; see FractalRenderer.Precision
+  //@param re, im the starting point, comp the complexity, limit the maximum number of iterations
+  //@return an integer representing the number of iterations (max limit)
+  static int escapeTimeFloat(float re, float im, int comp, int limit)
+  {
+    if (comp < 1)
+      return escapeTime(re, im, comp, limit);
+    
+    int count = 0;
+    while (re * re + im * im <= 4.0f && count < limit)
+    {
+      float pr = re, pi = im;
+      for (int i = 1; i < comp; i++)
+      {
+        float t = re * pr - im * pi;
+        pi = re * pi + im * pr;
+        pr = t;
+      }
+      re += pr;
+      im += pi;
+      count++;
+    }
+    return count;
+  }
+  
+  //orbit
+  //iterates like escapeTime, but records every point visited along the way
+  //@param re, im the starting point, comp the complexity (at least 1), limit the maximum number of iterations
+  //@param path receives the visited points as interleaved real and imag parts, length at least 2 * limit
+  //@return an integer representing the number of iterations (max limit)
+  static int orbit(double re, double im, int comp, int limit, double[] path)
+  {
+    int count = 0;
+    while (re * re + im * im <= 4.0 && count < limit)
+    {
+      path[2 * count] = re;
+      path[2 * count + 1] = im;
+      double pr = re, pi = im;
+      for (int i = 1; i < comp; i++)
+      {
+        double t = re * pr - im * pi;
+        pi = re * pi + im * pr;
+        pr = t;
+      }
+      re += pr;
+      im += pi;
+      count++;
+    }
+    return count;
+  }
+  
+  //shade
+  //maps a gray value onto the color scheme used by draw
+  //@param gvalue a value between 0 and 255
+  //@return the RGB value of the corresponding color
+  static int shade(int gvalue)
+  {
+    return 0xFF000000 | (gvalue << 16) | (((gvalue | 27) % 255) << 8) | ((gvalue & 150) % 255);
+  }
+  
   //changePixel
   //changes the pixel at coordinates x, y to Color c
   //@param int x, int y, Color c
@@ -139,6 +258,10 @@ public class Fractal
   //@return a BufferedImage containing the set
   public BufferedImage draw()
   {
+    //JFR event, only recorded when a recording asks for it
+    RenderEvent event = new RenderEvent();
+    event.begin();
+    long iterations = 0;
     
     //for each pixel on the BufferedImage
     for (int x = 0; x < size; x++)
@@ -150,12 +273,87 @@ public class Fractal
         double y0 = -scale/2 + scale*y/size;
         //new Complex using x0 and y0 as real and imag
         Complex z0 = new Complex(x0, y0); 
-        int gvalue = checkPoint(z0, 0) / 5; //call to recursive function
-        Color c = new Color(gvalue, ((gvalue | 27) % 255), ((gvalue & 150) % 255));
+        int count = checkPoint(z0, 0); //call to recursive function
+        iterations += count;
+        int gvalue = count / 5;
+        Color c = new Color(shade(gvalue));
         //pixel at x, y set to Color c (based on checkPoint)
         changePixel(x, y, c);
       }
     }
+    event.end();
+    if (event.shouldCommit())
+    {
+      event.size = size;
+      event.scale = scale;
+      event.complexity = complexity;
+      event.limit = MAX_ITERATION;
+      event.threads = 1;
+      event.iterations = iterations;
+      event.commit();
+    }
+    //final image returned
+    return image;
+  }
+  
+  //drawAntialiased
+  //creates the set with one sample per pixel, then re-samples only the pixels on an edge,
+  //i.e. those whose iteration count differs from a neighbor's by more than threshold,
+  //on a grid x grid sub-pixel grid. flat regions cost no more than with draw
+  //@param grid the number of sub-samples on each side of an edge pixel, threshold the edge threshold
+  //@return a BufferedImage containing the set
+  public BufferedImage drawAntialiased(int grid, int threshold)
+  {
+    if (grid < 1 || threshold < 0)
+      throw new IllegalArgumentException("Grid must be positive, threshold non-negative.");
+    
+    //first pass: one sample per pixel, kept for the edge test
+    int[] counts = new int[size * size];
+    for (int y = 0; y < size; y++)
+    {
+      for (int x = 0; x < size; x++)
+      {
+        double x0 = -scale/2 + scale*x/size;
+        double y0 = -scale/2 + scale*y/size;
+        counts[y * size + x] = escapeTime(x0, y0, complexity, MAX_ITERATION);
+      }
+    }
+    
+    for (int y = 0; y < size; y++)
+    {
+      for (int x = 0; x < size; x++)
+      {
+        int count = counts[y * size + x];
+        boolean edge = (x > 0 && Math.abs(count - counts[y * size + x - 1]) > threshold)
+                    || (x < size - 1 && Math.abs(count - counts[y * size + x + 1]) > threshold)
+                    || (y > 0 && Math.abs(count - counts[(y - 1) * size + x]) > threshold)
+                    || (y < size - 1 && Math.abs(count - counts[(y + 1) * size + x]) > threshold);
+        
+        if (!edge || grid == 1)
+        {
+          changePixel(x, y, new Color(shade(count / 5)));
+          continue;
+        }
+        
+        //second pass: the colors (not the counts) of the sub-samples are averaged
+        int r = 0, g = 0, b = 0;
+        for (int j = 0; j < grid; j++)
+        {
+          for (int i = 0; i < grid; i++)
+          {
+            //the sub-grid is centered on the point sampled by the first pass
+            double x0 = -scale/2 + scale*(x - 0.5 + (i + 0.5)/grid)/size;
+            double y0 = -scale/2 + scale*(y - 0.5 + (j + 0.5)/grid)/size;
+            int rgb = shade(escapeTime(x0, y0, complexity, MAX_ITERATION) / 5);
+            r += (rgb >> 16) & 0xFF;
+            g += (rgb >> 8) & 0xFF;
+            b += rgb & 0xFF;
+          }
+        }
+        int n = grid * grid;
+        changePixel(x, y, new Color(r / n, g / n, b / n));
+      }
+    }
     //final image returned
     return image;
   }
@@ -0,0 +1,423 @@
+/* FractalAnimation.java
+ * Renders a zoom sequence along a path of keyframes and writes it out as
+ * numbered PNG frames.
+ * Computing, coloring and encoding run as three pipeline stages on their own
+ * threads, connected by small bounded queues, so consecutive frames overlap
+ * and only a handful of frames are ever held in memory.
+ * Close frames are cropped out of a larger, finer canvas instead of being
+ * rendered from scratch.
+ */
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.*;
+
+public class FractalAnimation
+{
+  //capacity of the queues between the pipeline stages
+  private static final int QUEUE = 2;
+
+  //instance variables
+  private List<Keyframe> path;
+  private int size, frames, reuse, threads;
+
+  //frames rendered from scratch and cropped out of a canvas, for the last call to render
+  private int rendered, cropped;
+
+  //constructors
+
+  //takes the size of each frame, the keyframe path, and the number of frames between two keyframes
+  public FractalAnimation(int sz, List<Keyframe> keys, int perSegment)
+  {
+    if (sz <= 0 || perSegment < 1 || keys.isEmpty())
+      throw new IllegalArgumentException("Size and frames must be positive, and the path non-empty.");
+    size = sz;
+    path = new ArrayList<Keyframe>(keys);
+    frames = perSegment;
+    reuse = 2;
+    threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  //accessors
+
+  //getFrameCount
+  //@return the number of frames in the sequence
+  public int getFrameCount() {return (path.size() - 1) * frames + 1;}
+
+  //getReuse
+  //@return how many times finer than a frame the shared canvases are rendered
+  public int getReuse() {return reuse;}
+
+  //getRendered
+  //@return the number of views rendered from scratch (frames and canvases) by the last render
+  public int getRendered() {return rendered;}
+
+  //getCropped
+  //@return the number of frames cropped out of a canvas by the last render
+  public int getCropped() {return cropped;}
+
+  //mutators
+
+  //setReuse
+  //@param the canvas refinement; 1 renders every frame from scratch
+  public void setReuse(int r)
+  {
+    if (r < 1)
+      throw new IllegalArgumentException("Reuse must be positive.");
+    reuse = r;
+  }
+
+  //setThreads
+  //@param the number of worker threads used to compute each frame
+  public void setThreads(int t)
+  {
+    if (t < 1)
+      throw new IllegalArgumentException("At least one thread is required.");
+    threads = t;
+  }
+
+  //frame
+  //interpolates the view of a frame along the path.
+  //the scale is interpolated geometrically, so the zoom speed stays constant;
+  //complexity and limit change at the keyframes only
+  //@param n the frame number
+  //@return the Keyframe describing the view of frame n
+  Keyframe frame(int n)
+  {
+    int k = n / frames;
+    if (k >= path.size() - 1)
+      return path.get(path.size() - 1);
+    Keyframe a = path.get(k), b = path.get(k + 1);
+    double t = (double) (n % frames) / frames;
+    return new Keyframe(a.centerReal + (b.centerReal - a.centerReal) * t,
+                        a.centerImag + (b.centerImag - a.centerImag) * t,
+                        a.scale * Math.pow(b.scale / a.scale, t),
+                        a.complexity, a.limit);
+  }
+
+  //covers
+  //determines whether a frame can be cropped out of a canvas: same equation,
+  //inside its window, and no finer than the canvas pixels
+  //@param canvas the view of the canvas, view the view of the frame
+  //@return true if the frame can be taken from the canvas
+  private boolean covers(Keyframe canvas, Keyframe view)
+  {
+    return canvas.complexity == view.complexity && canvas.limit == view.limit
+        && view.scale * reuse >= canvas.scale
+        && view.centerReal - view.scale/2 >= canvas.centerReal - canvas.scale/2
+        && view.centerReal + view.scale/2 <= canvas.centerReal + canvas.scale/2
+        && view.centerImag - view.scale/2 >= canvas.centerImag - canvas.scale/2
+        && view.centerImag + view.scale/2 <= canvas.centerImag + canvas.scale/2;
+  }
+
+  //crop
+  //resamples a frame out of a canvas, taking the nearest canvas pixel
+  //@param counts the canvas counts, canvas its view, view the view of the frame
+  //@return the counts of the frame
+  private int[] crop(int[] counts, Keyframe canvas, Keyframe view)
+  {
+    int fine = size * reuse;
+    int[] out = new int[size * size];
+    int[] column = new int[size];
+    for (int x = 0; x < size; x++)
+      column[x] = index(view.centerReal + (-view.scale/2 + view.scale*x/size), canvas.centerReal, canvas.scale, fine);
+    for (int y = 0; y < size; y++)
+    {
+      int row = index(view.centerImag + (-view.scale/2 + view.scale*y/size), canvas.centerImag, canvas.scale, fine);
+      for (int x = 0; x < size; x++)
+        out[y * size + x] = counts[row * fine + column[x]];
+    }
+    return out;
+  }
+
+  //index
+  //@return the pixel of a canvas closest to coordinate p
+  private static int index(double p, double center, double sc, int sz)
+  {
+    long i = Math.round((p - center + sc/2) * sz / sc);
+    return (int) Math.max(0, Math.min(sz - 1, i));
+  }
+
+  //compute
+  //renders the counts of one view at the given resolution
+  private int[] compute(Keyframe view, int sz)
+  {
+    FractalRenderer renderer = new FractalRenderer(sz, view.scale, view.complexity);
+    renderer.setCenter(view.centerReal, view.centerImag);
+    renderer.setLimit(view.limit);
+    renderer.setThreads(threads);
+    rendered++;
+    return renderer.render();
+  }
+
+  //render
+  //renders the whole sequence into directory, as prefix00000.png, prefix00001.png, ...
+  //@param directory the output directory, prefix the file name prefix
+  //@return the number of frames written
+  public int render(File directory, String prefix) throws IOException
+  {
+    final File dir = directory;
+    final String name = prefix;
+    final BlockingQueue<Frame> toColor = new ArrayBlockingQueue<Frame>(QUEUE);
+    final BlockingQueue<Frame> toEncode = new ArrayBlockingQueue<Frame>(QUEUE);
+    final Frame end = new Frame(-1, null, 0);
+    final Pipeline pipeline = new Pipeline();
+    rendered = 0;
+    cropped = 0;
+
+    //stage 2: iteration counts to colors
+    pipeline.start("animation-color", new Callable<Void>() {
+      public Void call() throws Exception
+      {
+        for (Frame f = pipeline.take(toColor); f != end; f = pipeline.take(toColor))
+        {
+          f.image = FractalRenderer.toImage(f.counts, size, f.limit);
+          f.counts = null;
+          pipeline.put(toEncode, f);
+        }
+        pipeline.put(toEncode, end);
+        return null;
+      }});
+
+    //stage 3: colors to PNG files
+    pipeline.start("animation-encode", new Callable<Void>() {
+      public Void call() throws Exception
+      {
+        for (Frame f = pipeline.take(toEncode); f != end; f = pipeline.take(toEncode))
+        {
+          File out = new File(dir, String.format("%s%05d.png", name, f.number));
+          if (!ImageIO.write(f.image, "png", out))
+            throw new IOException("No PNG writer available.");
+        }
+        return null;
+      }});
+
+    //stage 1: the calling thread computes the iteration counts
+    try
+    {
+      Keyframe canvas = null;
+      int[] canvasCounts = null;
+      int total = getFrameCount();
+      for (int n = 0; n < total; n++)
+      {
+        Keyframe view = frame(n);
+        int[] counts;
+        if (reuse > 1 && canvas != null && covers(canvas, view))
+        {
+          counts = crop(canvasCounts, canvas, view);
+          cropped++;
+        }
+        else
+        {
+          //a canvas costs reuse^2 frames; only render one if enough of the next frames fit in it
+          int fit = 1;
+          while (reuse > 1 && n + fit < total && covers(view, frame(n + fit)))
+            fit++;
+          if (fit > reuse * reuse)
+          {
+            canvas = view;
+            canvasCounts = compute(view, size * reuse);
+            counts = crop(canvasCounts, canvas, view);
+            cropped++;
+          }
+          else
+          {
+            canvas = null;
+            canvasCounts = null;
+            counts = compute(view, size);
+          }
+        }
+        pipeline.feed(toColor, new Frame(n, counts, view.limit));
+      }
+      pipeline.feed(toColor, end);
+      pipeline.finish();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while rendering.");
+    }
+    finally
+    {
+      //whatever stopped this loop, including an Error such as running out of
+      //memory for a canvas, the other stages must not be left waiting for frames
+      pipeline.cancel();
+    }
+    return getFrameCount();
+  }
+
+  //main
+  //usage: FractalAnimation directory size frames re,im,scale,complexity,limit ...
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 4)
+    {
+      System.err.println("usage: FractalAnimation <directory> <size> <frames per segment> <re,im,scale,complexity,limit>...");
+      System.exit(1);
+    }
+    List<Keyframe> keys = new ArrayList<Keyframe>();
+    for (int i = 3; i < args.length; i++)
+    {
+      String[] k = args[i].split(",");
+      keys.add(new Keyframe(Double.parseDouble(k[0]), Double.parseDouble(k[1]), Double.parseDouble(k[2]),
+                            Integer.parseInt(k[3]), Integer.parseInt(k[4])));
+    }
+    FractalAnimation animation = new FractalAnimation(Integer.parseInt(args[1]), keys, Integer.parseInt(args[2]));
+    long start = System.nanoTime();
+    int n = animation.render(new File(args[0]), "frame");
+    System.out.printf("%d frames (%d views rendered, %d frames cropped) in %.1f s%n",
+                      n, animation.getRendered(), animation.getCropped(), (System.nanoTime() - start) / 1e9);
+  }
+
+  //class Keyframe
+  //a point on the animation path
+  public static class Keyframe
+  {
+    final double centerReal, centerImag, scale;
+    final int complexity, limit;
+
+    //takes the center, scale, complexity and iteration limit of the view
+    public Keyframe(double re, double im, double sc, int comp, int lim)
+    {
+      if (sc <= 0 || lim < 1)
+        throw new IllegalArgumentException("Scale and limit must be positive.");
+      centerReal = re;
+      centerImag = im;
+      scale = sc;
+      complexity = comp;
+      limit = lim;
+    }
+  }
+
+  //class Frame
+  //a frame travelling down the pipeline
+  private static class Frame
+  {
+    final int number, limit;
+    int[] counts;
+    BufferedImage image;
+
+    Frame(int n, int[] c, int l)
+    {
+      number = n;
+      counts = c;
+      limit = l;
+    }
+  }
+
+  //class Pipeline
+  //runs the stages after the first, and stops everything once one of them fails
+  private static class Pipeline
+  {
+    //daemon threads, so a stage that is somehow left blocked cannot keep the JVM alive
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+      }});
+    private final List<Future<Void>> stages = new ArrayList<Future<Void>>();
+    private volatile boolean failed;
+
+    void start(final String name, final Callable<Void> stage)
+    {
+      stages.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception
+        {
+          Thread.currentThread().setName(name);
+          try
+          {
+            return stage.call();
+          }
+          catch (Throwable e)
+          {
+            //the stages waiting on this one would otherwise wait forever
+            failed = true;
+            executor.shutdownNow();
+            throw e;
+          }
+        }}));
+    }
+
+    //put
+    //hands a frame to the next stage, giving up if a stage has failed (and will never take it)
+    void put(BlockingQueue<Frame> queue, Frame f) throws InterruptedException
+    {
+      while (!queue.offer(f, 100, TimeUnit.MILLISECONDS))
+        if (failed)
+          throw new CancellationException();
+    }
+
+    //take
+    //takes a frame from the previous stage, giving up if a stage has failed (and will never send one)
+    Frame take(BlockingQueue<Frame> queue) throws InterruptedException
+    {
+      Frame f;
+      while ((f = queue.poll(100, TimeUnit.MILLISECONDS)) == null)
+        if (failed)
+          throw new CancellationException();
+      return f;
+    }
+
+    //finish
+    //waits for the stages to drain, rethrowing the failure that stopped them, if any
+    void finish() throws IOException, InterruptedException
+    {
+      Throwable cause = null;
+      try
+      {
+        if (failed)
+          executor.shutdownNow();
+        for (Future<Void> f : stages)
+        {
+          try
+          {
+            f.get();
+          }
+          catch (ExecutionException e)
+          {
+            //stages that were only cancelled because of another one are not the cause
+            if (cause == null || cause instanceof CancellationException || cause instanceof InterruptedException)
+              cause = e.getCause();
+          }
+        }
+      }
+      finally
+      {
+        executor.shutdownNow();
+      }
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if (cause != null)
+        throw new RuntimeException(cause);
+    }
+
+    //feed
+    //hands a frame to the first of the stages; if a stage has failed, stops the
+    //others and rethrows its failure
+    void feed(BlockingQueue<Frame> queue, Frame f) throws IOException, InterruptedException
+    {
+      try
+      {
+        put(queue, f);
+      }
+      catch (CancellationException e)
+      {
+        executor.shutdownNow();
+        finish();
+        throw new IOException("Rendering stopped by a failed stage.");
+      }
+    }
+
+    void cancel()
+    {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,397 @@
+/* FractalRenderer.java
+ * Renders the Fractal equation into a buffer of iteration counts, using the
+ * primitive kernel and several worker threads.
+ * The image is split into square tiles that the workers take one at a time,
+ * so that slow tiles (deep inside the set) do not hold back the others.
+ * Shallow views are computed in single precision, see Precision.
+ */
+
+import java.awt.image.*;
+import java.util.concurrent.atomic.*;
+
+public class FractalRenderer
+{
+  //width and height of a tile, in pixels
+  static final int TILE = 64;
+
+  //floats are used only while a pixel is at least this many float ulps wide
+  static final double FLOAT_MARGIN = 1024;
+
+  //probes per side of a float tile that are checked against double, and the
+  //iteration difference a probe may show before the tile is promoted
+  static final int PROBES = 4;
+  static final int PROBE_SLACK = 2;
+
+  //enum Precision
+  //the arithmetic of the kernel. AUTO picks FLOAT when the pixel spacing is far above
+  //float resolution, DOUBLE otherwise; a FLOAT tile whose probes disagree with DOUBLE
+  //is promoted and computed again in DOUBLE. the scalar float kernel is no faster than
+  //the double one, so DOUBLE stays the default until a faster float kernel exists
+  public enum Precision {AUTO, FLOAT, DOUBLE}
+
+  //instance variables
+  private int size, complexity, limit, threads;
+  private double scale, centerReal, centerImag;
+  private boolean statistics;
+  private Precision precision = Precision.DOUBLE;
+
+  //precision chosen for the last render, and the number of its tiles promoted to double
+  private Precision tier;
+  private AtomicInteger promoted = new AtomicInteger();
+
+  //statistics of the last call to render, when enabled
+  private RenderStats stats;
+
+  //constructors
+
+  //takes the size, scale, and complexity of the view, centered on the origin
+  public FractalRenderer(int sz, double sc, int comp)
+  {
+    if (sz <= 0)
+      throw new IllegalArgumentException("Size must be positive.");
+    size = sz;
+    scale = sc;
+    complexity = comp;
+    limit = Fractal.MAX_ITERATION;
+    threads = Runtime.getRuntime().availableProcessors();
+  }
+
+  //accessors
+
+  //getSize
+  //@return the size (of each side) of the view
+  public int getSize() {return size;}
+
+  //getScale
+  //@return the scale of the view
+  public double getScale() {return scale;}
+
+  //getComplexity
+  //@return the complexity of the fractal
+  public int getComplexity() {return complexity;}
+
+  //getLimit
+  //@return the maximum number of iterations per pixel
+  public int getLimit() {return limit;}
+
+  //getThreads
+  //@return the number of worker threads used by render
+  public int getThreads() {return threads;}
+
+  //getCenterReal
+  //@return the real part of the center of the view
+  public double getCenterReal() {return centerReal;}
+
+  //getCenterImag
+  //@return the imaginary part of the center of the view
+  public double getCenterImag() {return centerImag;}
+
+  //getStatistics
+  //@return the statistics of the last render, or null if they were disabled
+  public RenderStats getStatistics() {return stats;}
+
+  //getPrecision
+  //@return the requested precision
+  public Precision getPrecision() {return precision;}
+
+  //getTier
+  //@return the precision chosen for the last render (FLOAT or DOUBLE), or null before the first
+  public Precision getTier() {return tier;}
+
+  //getPromotedTiles
+  //@return the number of tiles of the last render promoted from FLOAT to DOUBLE
+  public int getPromotedTiles() {return promoted.get();}
+
+  //mutators
+
+  //setCenter
+  //@param re, im the new center of the view
+  public void setCenter(double re, double im)
+  {
+    centerReal = re;
+    centerImag = im;
+  }
+
+  //setLimit
+  //@param the new maximum number of iterations per pixel
+  public void setLimit(int l)
+  {
+    if (l < 1)
+      throw new IllegalArgumentException("Limit must be positive.");
+    limit = l;
+  }
+
+  //setThreads
+  //@param the number of worker threads to be used by render
+  public void setThreads(int t)
+  {
+    if (t < 1)
+      throw new IllegalArgumentException("At least one thread is required.");
+    threads = t;
+  }
+
+  //setPrecision
+  //@param the precision of the kernel (DOUBLE by default); AUTO chooses per view
+  public void setPrecision(Precision p)
+  {
+    if (p == null)
+      throw new IllegalArgumentException("Precision cannot be null.");
+    precision = p;
+  }
+
+  //setStatistics
+  //@param whether render should collect RenderStats; the JFR events are
+  //controlled by the recording settings instead
+  public void setStatistics(boolean enabled)
+  {
+    statistics = enabled;
+  }
+
+  //render
+  //computes the iteration count of every pixel in the view
+  //@return the counts in row-major order (index y * size + x)
+  public int[] render()
+  {
+    final int[] counts = new int[size * size];
+    final int across = (size + TILE - 1) / TILE;
+    final int tiles = across * across;
+    final AtomicInteger next = new AtomicInteger();
+    int n = Math.min(threads, tiles);
+    //only allocated when asked for, so that disabled statistics cost nothing per tile
+    final RenderStats run = statistics ? new RenderStats(size, limit, n, across) : null;
+    final Precision view = choose();
+    tier = view;
+    promoted.set(0);
+
+    long start = run != null ? System.nanoTime() : 0;
+    RenderEvent event = new RenderEvent();
+    event.begin();
+
+    Worker[] workers = new Worker[n];
+    for (int i = 0; i < n; i++)
+      workers[i] = new Worker(i, counts, across, tiles, next, run, view);
+
+    Thread[] running = new Thread[n - 1];
+    for (int i = 0; i < running.length; i++)
+    {
+      running[i] = new Thread(workers[i + 1], "renderer-" + i);
+      running[i].start();
+    }
+    workers[0].run(); //the calling thread takes tiles too
+
+    try
+    {
+      for (Thread t : running)
+        t.join();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while rendering.", e);
+    }
+
+    event.end();
+    if (run != null)
+    {
+      run.finish(counts, System.nanoTime() - start);
+      run.precision(view, promoted.get());
+    }
+    if (event.shouldCommit())
+    {
+      event.size = size;
+      event.scale = scale;
+      event.complexity = complexity;
+      event.limit = limit;
+      event.threads = n;
+      event.precision = view.name();
+      event.promotedTiles = promoted.get();
+      event.iterations = run != null ? run.getIterations() : RenderStats.sum(counts, 0, size, size, size);
+      event.commit();
+    }
+    stats = run;
+    return counts;
+  }
+
+  //class Worker
+  //takes tiles off the shared counter until there are none left
+  private class Worker implements Runnable
+  {
+    private final int id, across, tiles;
+    private final int[] counts;
+    private final AtomicInteger next;
+    private final RenderStats run;
+    private final Precision view;
+
+    private Worker(int i, int[] c, int a, int t, AtomicInteger n, RenderStats r, Precision p)
+    {
+      view = p;
+      id = i;
+      counts = c;
+      across = a;
+      tiles = t;
+      next = n;
+      run = r;
+    }
+
+    public void run()
+    {
+      long cpu = run != null ? RenderStats.cpuTime() : 0;
+      for (int t = next.getAndIncrement(); t < tiles; t = next.getAndIncrement())
+      {
+        int x0 = (t % across) * TILE, y0 = (t / across) * TILE;
+        int w = Math.min(TILE, size - x0), h = Math.min(TILE, size - y0);
+
+        TileEvent event = new TileEvent();
+        event.begin();
+        long start = run != null ? System.nanoTime() : 0;
+        Precision used = renderTile(counts, x0, y0, w, h, view);
+        if (run != null)
+          run.tile(t, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit())
+        {
+          event.x = x0;
+          event.y = y0;
+          event.width = w;
+          event.height = h;
+          event.precision = used.name();
+          event.iterations = RenderStats.sum(counts, y0 * size + x0, size, w, h);
+          event.commit();
+        }
+      }
+      if (run != null)
+        run.worker(id, RenderStats.cpuTime() - cpu);
+    }
+  }
+
+  //choose
+  //resolves the requested precision for the current view. a float cannot tell apart
+  //coordinates closer than its ulp at the largest coordinate of the view; the
+  //orbits amplify that error, so floats need pixels far wider than an ulp
+  //@return FLOAT or DOUBLE
+  Precision choose()
+  {
+    if (precision != Precision.AUTO)
+      return precision;
+    double extent = Math.max(Math.abs(centerReal), Math.abs(centerImag)) + Math.abs(scale)/2;
+    double ulp = Math.ulp((float) Math.min(extent, Float.MAX_VALUE));
+    return Math.abs(scale) / size >= FLOAT_MARGIN * ulp ? Precision.FLOAT : Precision.DOUBLE;
+  }
+
+  //renderTile
+  //computes the iteration counts of a rectangle of the view
+  //@param counts the row-major buffer of the whole view, x0, y0 the top left corner, w, h the dimensions, p FLOAT or DOUBLE
+  //@return the precision the tile ended up being computed in
+  Precision renderTile(int[] counts, int x0, int y0, int w, int h, Precision p)
+  {
+    return fill(counts, y0 * size + x0, size, x0, y0, w, h, p);
+  }
+
+  //renderRegion
+  //computes the iteration counts of a rectangle of the view on their own
+  //@param x0, y0 the top left corner, w, h the dimensions
+  //@return the counts of the rectangle in row-major order (index y * w + x)
+  public int[] renderRegion(int x0, int y0, int w, int h)
+  {
+    if (x0 < 0 || y0 < 0 || w < 0 || h < 0 || x0 + w > size || y0 + h > size)
+      throw new IllegalArgumentException("Region is outside of the view.");
+    int[] counts = new int[w * h];
+    tier = choose();
+    promoted.set(0);
+    fill(counts, 0, w, x0, y0, w, h, tier);
+    return counts;
+  }
+
+  //fill
+  //the kernel loop shared by renderTile and renderRegion. in FLOAT, a grid of probe pixels
+  //is checked against DOUBLE afterwards, and the whole rectangle is computed again in
+  //DOUBLE if any of them is off, or if neighboring pixels fall onto the same float
+  //@param out the buffer, offset the index of the top left corner in it, stride the length of its rows, p FLOAT or DOUBLE
+  //@return the precision the rectangle ended up being computed in
+  private Precision fill(int[] out, int offset, int stride, int x0, int y0, int w, int h, Precision p)
+  {
+    if (w == 0 || h == 0)
+      return p;
+    if (p == Precision.FLOAT)
+    {
+      boolean collapsed = false;
+      for (int y = 0; y < h; y++)
+      {
+        //same mapping as Fractal.draw, shifted onto the center, rounded once to float
+        float im = (float) imag(y0 + y);
+        collapsed |= y > 0 && im == (float) imag(y0 + y - 1);
+        float previous = Float.NaN;
+        for (int x = 0; x < w; x++)
+        {
+          float re = (float) real(x0 + x);
+          collapsed |= re == previous;
+          previous = re;
+          out[offset + y * stride + x] = Fractal.escapeTimeFloat(re, im, complexity, limit);
+        }
+      }
+      if (!collapsed && probe(out, offset, stride, x0, y0, w, h))
+        return Precision.FLOAT;
+      promoted.incrementAndGet();
+    }
+
+    for (int y = 0; y < h; y++)
+    {
+      double im = imag(y0 + y);
+      for (int x = 0; x < w; x++)
+        out[offset + y * stride + x] = Fractal.escapeTime(real(x0 + x), im, complexity, limit);
+    }
+    return Precision.DOUBLE;
+  }
+
+  //probe
+  //compares a PROBES x PROBES grid of a float rectangle with the double kernel
+  //@return true if every probe is within PROBE_SLACK iterations
+  private boolean probe(int[] out, int offset, int stride, int x0, int y0, int w, int h)
+  {
+    for (int j = 0; j < PROBES; j++)
+    {
+      int y = (2 * j + 1) * h / (2 * PROBES);
+      for (int i = 0; i < PROBES; i++)
+      {
+        int x = (2 * i + 1) * w / (2 * PROBES);
+        int exact = Fractal.escapeTime(real(x0 + x), imag(y0 + y), complexity, limit);
+        if (Math.abs(exact - out[offset + y * stride + x]) > PROBE_SLACK)
+          return false;
+      }
+    }
+    return true;
+  }
+
+  //real
+  //@return the real part of the pixels in column x, same mapping as Fractal.draw shifted onto the center
+  private double real(int x)
+  {
+    return centerReal + (-scale/2 + scale*x/size);
+  }
+
+  //imag
+  //@return the imaginary part of the pixels in row y
+  private double imag(int y)
+  {
+    return centerImag + (-scale/2 + scale*y/size);
+  }
+
+  //toImage
+  //colors a buffer of iteration counts like Fractal.draw
+  //@param counts the row-major counts, sz the size of each side, lim the iteration limit they were rendered with
+  //@return a new BufferedImage
+  public static BufferedImage toImage(int[] counts, int sz, int lim)
+  {
+    BufferedImage image = new BufferedImage(sz, sz, BufferedImage.TYPE_INT_RGB);
+    int[] rgb = new int[counts.length];
+    for (int i = 0; i < counts.length; i++)
+    {
+      //counts are rescaled onto the default limit, so the palette does not depend on it
+      int gvalue = (int) Math.min(255, (long) counts[i] * Fractal.MAX_ITERATION / lim / 5);
+      rgb[i] = Fractal.shade(gvalue);
+    }
+    image.setRGB(0, 0, sz, sz, rgb, 0, sz);
+    return image;
+  }
+
+}
@@ -0,0 +1,196 @@
+/* GoldenHarness.java
+ * Checks the fast rendering engines against the original recursive checkPoint path.
+ * A fixed suite of views (complexities 3 to 5, as in examples/, at several scales)
+ * is rendered by the reference and by every engine, and the iteration counts are
+ * compared pixel by pixel. An engine fails a view when too many pixels differ,
+ * or differ on average by too much, for its tolerance.
+ * Run by "make check" and by "mvn test"; exits with status 1 on failure.
+ */
+
+import java.io.*;
+import java.util.*;
+
+public class GoldenHarness
+{
+  //the suite: small enough for every build, large enough to cross the set boundary many times
+  private static final int SIZE = 64;
+  private static final int[] COMPLEXITIES = {3, 4, 5};
+  private static final double[] SCALES = {10, 4, 1};
+
+  //instance variables
+  private List<Engine> engines = new ArrayList<Engine>();
+  private Map<Engine, Tolerance> tolerances = new HashMap<Engine, Tolerance>();
+  private Tolerance override;
+
+  //addEngine
+  //@param engine the engine to be checked, tolerance what it is allowed to get wrong
+  public void addEngine(Engine engine, Tolerance tolerance)
+  {
+    engines.add(engine);
+    tolerances.put(engine, tolerance);
+  }
+
+  //setTolerance
+  //@param a tolerance to be used for every engine instead of its own
+  public void setTolerance(Tolerance t)
+  {
+    override = t;
+  }
+
+  //compare
+  //@param reference the reference counts, counts the counts of an engine, slack the difference still counted as equal
+  //@return the statistics of the differences
+  static Difference compare(int[] reference, int[] counts, int slack)
+  {
+    Difference d = new Difference();
+    long total = 0;
+    for (int i = 0; i < reference.length; i++)
+    {
+      int diff = Math.abs(reference[i] - counts[i]);
+      total += diff;
+      d.max = Math.max(d.max, diff);
+      if (diff > slack)
+        d.pixels++;
+    }
+    d.fraction = (double) d.pixels / reference.length;
+    d.mean = (double) total / reference.length;
+    return d;
+  }
+
+  //run
+  //renders the suite with the reference and every engine, and prints a line per view and engine
+  //@param out where the report goes
+  //@return true if every engine stayed within its tolerance on every view
+  public boolean run(PrintStream out) throws Exception
+  {
+    boolean passed = true;
+    out.printf("%-12s %5s %6s %8s %8s %6s %8s%n", "engine", "comp", "scale", "differ", "fraction", "max", "mean");
+    for (int comp : COMPLEXITIES)
+    {
+      for (double scale : SCALES)
+      {
+        int[] reference = new Fractal(SIZE, scale, comp).iterations();
+        for (Engine engine : engines)
+        {
+          Tolerance t = override != null ? override : tolerances.get(engine);
+          Difference d = compare(reference, engine.render(SIZE, scale, comp), t.slack);
+          boolean ok = d.fraction <= t.fraction && d.mean <= t.mean;
+          passed &= ok;
+          out.printf("%-12s %5d %6.2f %8d %8.5f %6d %8.4f %s%n", engine.getName(), comp, scale,
+                     d.pixels, d.fraction, d.max, d.mean, ok ? "ok" : "FAILED");
+        }
+      }
+    }
+    return passed;
+  }
+
+  //main
+  //usage: GoldenHarness [slack fraction mean], to replace the tolerance of every engine
+  public static void main(String[] args) throws Exception
+  {
+    GoldenHarness harness = new GoldenHarness();
+
+    //the primitive kernel on its own, one thread
+    harness.addEngine(new Engine() {
+      public String getName() {return "escapeTime";}
+      public int[] render(int size, double scale, int comp)
+      {
+        int[] counts = new int[size * size];
+        for (int y = 0; y < size; y++)
+          for (int x = 0; x < size; x++)
+            counts[y * size + x] = Fractal.escapeTime(-scale/2 + scale*x/size, -scale/2 + scale*y/size,
+                                                      comp, Fractal.MAX_ITERATION);
+        return counts;
+      }}, Tolerance.EXACT);
+
+    //the tiled, multi-threaded renderer
+    harness.addEngine(new Engine() {
+      public String getName() {return "renderer";}
+      public int[] render(int size, double scale, int comp)
+      {
+        FractalRenderer renderer = new FractalRenderer(size, scale, comp);
+        renderer.setPrecision(FractalRenderer.Precision.DOUBLE);
+        return renderer.render();
+      }}, Tolerance.EXACT);
+
+    //the float preview tier, with its per-tile promotion; orbits near the boundary
+    //are chaotic, so a few pixels there may escape many iterations apart
+    harness.addEngine(new Engine() {
+      public String getName() {return "float";}
+      public int[] render(int size, double scale, int comp)
+      {
+        FractalRenderer renderer = new FractalRenderer(size, scale, comp);
+        renderer.setPrecision(FractalRenderer.Precision.FLOAT);
+        return renderer.render();
+      }}, new Tolerance(2, 0.01, 0.5));
+
+    //the distributed renderer, through the compressed tile protocol of an in-process worker
+    final TileWorker worker = new TileWorker(0);
+    Thread serving = new Thread(new Runnable() {
+      public void run()
+      {
+        try {worker.serve();} catch (IOException e) {}
+      }}, "golden-worker");
+    serving.setDaemon(true);
+    serving.start();
+    harness.addEngine(new Engine() {
+      public String getName() {return "distributed";}
+      public int[] render(int size, double scale, int comp) throws IOException
+      {
+        TileCoordinator coordinator = new TileCoordinator(size, scale, comp);
+        coordinator.setPrecision(FractalRenderer.Precision.DOUBLE);
+        coordinator.addWorker("localhost", worker.getPort(), 2);
+        return coordinator.render();
+      }}, Tolerance.EXACT);
+
+    if (args.length >= 3)
+      harness.setTolerance(new Tolerance(Integer.parseInt(args[0]), Double.parseDouble(args[1]), Double.parseDouble(args[2])));
+
+    long start = System.nanoTime();
+    boolean passed = harness.run(System.out);
+    System.out.printf("%s in %.2f s%n", passed ? "passed" : "FAILED", (System.nanoTime() - start) / 1e9);
+    System.exit(passed ? 0 : 1);
+  }
+
+  //interface Engine
+  //a way of rendering iteration counts that should match the reference
+  public interface Engine
+  {
+    //@return the name printed in the report
+    String getName();
+
+    //@return the counts of the view centered on the origin, row-major (index y * size + x)
+    int[] render(int size, double scale, int comp) throws Exception;
+  }
+
+  //class Tolerance
+  //how far an engine may stray from the reference on a single view
+  public static class Tolerance
+  {
+    //bit-for-bit identical counts
+    public static final Tolerance EXACT = new Tolerance(0, 0, 0);
+
+    final int slack;
+    final double fraction, mean;
+
+    //takes the per-pixel difference still counted as equal, the fraction of pixels that may
+    //differ by more than that, and the largest mean difference over all pixels
+    public Tolerance(int s, double f, double m)
+    {
+      if (s < 0 || f < 0 || m < 0)
+        throw new IllegalArgumentException("Tolerances cannot be negative.");
+      slack = s;
+      fraction = f;
+      mean = m;
+    }
+  }
+
+  //class Difference
+  //per-pixel iteration difference statistics of one engine on one view
+  static class Difference
+  {
+    int pixels, max;
+    double fraction, mean;
+  }
+
+}
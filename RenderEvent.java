@@ -0,0 +1,39 @@
+/* RenderEvent.java
+ * JDK Flight Recorder event committed for every FractalRenderer.render and
+ * Fractal.draw, so renders can be lined up with GC and CPU profiles.
+ * Like every JFR event, it costs next to nothing unless a recording enables it.
+ */
+
+import jdk.jfr.*;
+
+@Name("fractal.Render")
+@Label("Fractal Render")
+@Category("Fractal")
+@Description("A complete render of a fractal view")
+public class RenderEvent extends Event
+{
+  @Label("Size")
+  int size;
+
+  @Label("Scale")
+  double scale;
+
+  @Label("Complexity")
+  int complexity;
+
+  @Label("Iteration Limit")
+  int limit;
+
+  @Label("Threads")
+  int threads;
+
+  @Label("Precision")
+  String precision;
+
+  @Label("Promoted Tiles")
+  @Description("Tiles computed again in double after their float probes disagreed")
+  int promotedTiles;
+
+  @Label("Iterations")
+  long iterations;
+}
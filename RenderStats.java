@@ -0,0 +1,175 @@
+/* RenderStats.java
+ * Statistics of a single FractalRenderer.render: wall and CPU time, throughput,
+ * iteration totals, a histogram of escape iterations and the cost of each tile.
+ * Workers only record their own slots while rendering; everything derived from
+ * the counts is computed once, after the render.
+ */
+
+import java.awt.image.*;
+import java.lang.management.*;
+
+public class RenderStats
+{
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+  //instance variables
+  private int size, limit, across;
+  private long wall, iterations;
+  private FractalRenderer.Precision tier;
+  private int promoted;
+  private long[] cpu, tiles;
+  private int[] histogram;
+
+  //takes the size and iteration limit of the view, the number of workers, and the number of tiles on a side
+  RenderStats(int sz, int lim, int workers, int a)
+  {
+    size = sz;
+    limit = lim;
+    across = a;
+    cpu = new long[workers];
+    tiles = new long[a * a];
+  }
+
+  //tile
+  //records the time spent on a tile; called by the worker that computed it
+  void tile(int t, long nanos)
+  {
+    tiles[t] = nanos;
+  }
+
+  //worker
+  //records the CPU time of a worker once it runs out of tiles
+  void worker(int id, long nanos)
+  {
+    cpu[id] = nanos;
+  }
+
+  //finish
+  //derives the iteration statistics from the finished counts
+  void finish(int[] counts, long nanos)
+  {
+    wall = nanos;
+    histogram = new int[limit + 1];
+    iterations = 0;
+    for (int c : counts)
+    {
+      histogram[c]++;
+      iterations += c;
+    }
+  }
+
+  //precision
+  //records the precision chosen for the render and the number of tiles promoted to double
+  void precision(FractalRenderer.Precision t, int p)
+  {
+    tier = t;
+    promoted = p;
+  }
+
+  //cpuTime
+  //@return the CPU time of the current thread in nanoseconds, or -1 if the JVM cannot measure it
+  static long cpuTime()
+  {
+    return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+  }
+
+  //sum
+  //@param counts a row-major buffer, offset the index of the first count, stride the length of its rows, w, h the rectangle
+  //@return the sum of the counts in the rectangle
+  static long sum(int[] counts, int offset, int stride, int w, int h)
+  {
+    long total = 0;
+    for (int y = 0; y < h; y++)
+      for (int x = 0; x < w; x++)
+        total += counts[offset + y * stride + x];
+    return total;
+  }
+
+  //accessors
+
+  //getWallTime
+  //@return the wall-clock time of the render, in nanoseconds
+  public long getWallTime() {return wall;}
+
+  //getCpuTimes
+  //@return the CPU time of each worker in nanoseconds (-1 where unsupported); worker 0 is the calling thread
+  public long[] getCpuTimes() {return cpu.clone();}
+
+  //getCpuTime
+  //@return the CPU time of all workers together, in nanoseconds
+  public long getCpuTime()
+  {
+    long total = 0;
+    for (long c : cpu)
+      total += Math.max(0, c);
+    return total;
+  }
+
+  //getPixels
+  //@return the number of pixels rendered
+  public long getPixels() {return (long) size * size;}
+
+  //getPixelsPerSecond
+  //@return the number of pixels rendered per second of wall time
+  public double getPixelsPerSecond()
+  {
+    return wall == 0 ? 0 : getPixels() * 1e9 / wall;
+  }
+
+  //getIterations
+  //@return the total number of iterations over all pixels
+  public long getIterations() {return iterations;}
+
+  //getHistogram
+  //@return the number of pixels for each escape iteration; the last entry counts the pixels that hit the limit
+  public int[] getHistogram() {return histogram.clone();}
+
+  //getLimitFraction
+  //@return the fraction of pixels that hit the iteration limit
+  public double getLimitFraction()
+  {
+    return (double) histogram[limit] / getPixels();
+  }
+
+  //getTier
+  //@return the precision chosen for the render, FLOAT or DOUBLE
+  public FractalRenderer.Precision getTier() {return tier;}
+
+  //getPromotedTiles
+  //@return the number of tiles promoted from FLOAT to DOUBLE
+  public int getPromotedTiles() {return promoted;}
+
+  //getTilesAcross
+  //@return the number of tiles on each side of the view
+  public int getTilesAcross() {return across;}
+
+  //getTileTimes
+  //@return the time spent on each tile in nanoseconds, row-major (index ty * across + tx)
+  public long[] getTileTimes() {return tiles.clone();}
+
+  //heatmap
+  //draws the cost of every tile over the view, from dark (cheapest) to light (most expensive)
+  //@return a new BufferedImage the size of the view
+  public BufferedImage heatmap()
+  {
+    long max = 1;
+    for (long t : tiles)
+      max = Math.max(max, t);
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    int tile = FractalRenderer.TILE;
+    for (int y = 0; y < size; y++)
+      for (int x = 0; x < size; x++)
+        image.setRGB(x, y, Fractal.shade((int) (255 * tiles[(y / tile) * across + x / tile] / max)));
+    return image;
+  }
+
+  //toString
+  //@return a one-line summary of the render
+  public String toString()
+  {
+    return String.format("%d px in %.1f ms (%.0f px/s), cpu %.1f ms over %d workers, %d iterations, %.1f%% at limit, %s (%d/%d tiles promoted)",
+                         getPixels(), wall / 1e6, getPixelsPerSecond(), getCpuTime() / 1e6, cpu.length,
+                         iterations, 100 * getLimitFraction(), tier, promoted, tiles.length);
+  }
+
+}
@@ -0,0 +1,296 @@
+/* TileCoordinator.java
+ * Splits a render into tiles and farms them out to TileWorker processes over TCP.
+ * Every worker connection pulls the next tile from a shared queue as soon as it
+ * has returned the last one, so faster workers simply take more tiles.
+ * A connection that fails or stays silent for longer than the timeout is dropped,
+ * and its tile goes back to the front of the queue for another worker.
+ */
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.imageio.*;
+
+public class TileCoordinator
+{
+  //instance variables
+  private int size, complexity, limit, timeout;
+  private double scale, centerReal, centerImag;
+  private FractalRenderer.Precision precision = FractalRenderer.Precision.DOUBLE;
+  private List<InetSocketAddress> workers = new ArrayList<InetSocketAddress>();
+
+  //tiles that had to be handed to another worker, for the last call to render
+  private AtomicInteger retries = new AtomicInteger();
+
+  //constructors
+
+  //takes the size, scale, and complexity of the view, centered on the origin
+  public TileCoordinator(int sz, double sc, int comp)
+  {
+    if (sz <= 0)
+      throw new IllegalArgumentException("Size must be positive.");
+    size = sz;
+    scale = sc;
+    complexity = comp;
+    limit = Fractal.MAX_ITERATION;
+    timeout = 30000;
+  }
+
+  //accessors
+
+  //getRetries
+  //@return the number of tiles that were retried during the last render
+  public int getRetries() {return retries.get();}
+
+  //mutators
+
+  //setCenter
+  //@param re, im the new center of the view
+  public void setCenter(double re, double im)
+  {
+    centerReal = re;
+    centerImag = im;
+  }
+
+  //setLimit
+  //@param the new maximum number of iterations per pixel
+  public void setLimit(int l)
+  {
+    if (l < 1)
+      throw new IllegalArgumentException("Limit must be positive.");
+    limit = l;
+  }
+
+  //setPrecision
+  //@param the precision the workers compute in (DOUBLE by default); AUTO lets them choose per view
+  public void setPrecision(FractalRenderer.Precision p)
+  {
+    if (p == null)
+      throw new IllegalArgumentException("Precision cannot be null.");
+    precision = p;
+  }
+
+  //setTimeout
+  //@param the time in milliseconds after which a silent worker is considered stalled
+  public void setTimeout(int ms)
+  {
+    if (ms < 1)
+      throw new IllegalArgumentException("Timeout must be positive.");
+    timeout = ms;
+  }
+
+  //addWorker
+  //@param host, port the address of a TileWorker, connections how many tiles it may work on at once
+  public void addWorker(String host, int port, int connections)
+  {
+    for (int i = 0; i < connections; i++)
+      workers.add(new InetSocketAddress(host, port));
+  }
+
+  //render
+  //computes the iteration count of every pixel in the view on the workers
+  //@return the counts in row-major order (index y * size + x)
+  public int[] render() throws IOException
+  {
+    if (workers.isEmpty())
+      throw new IllegalStateException("No workers to render on.");
+
+    final int[] counts = new int[size * size];
+    final BlockingDeque<int[]> queue = new LinkedBlockingDeque<int[]>();
+    for (int y = 0; y < size; y += FractalRenderer.TILE)
+      for (int x = 0; x < size; x += FractalRenderer.TILE)
+        queue.add(new int[] {x, y, Math.min(FractalRenderer.TILE, size - x), Math.min(FractalRenderer.TILE, size - y)});
+    final CountDownLatch done = new CountDownLatch(queue.size());
+    final AtomicInteger alive = new AtomicInteger(workers.size());
+    retries.set(0);
+
+    Thread[] connections = new Thread[workers.size()];
+    for (int i = 0; i < connections.length; i++)
+    {
+      final InetSocketAddress address = workers.get(i);
+      connections[i] = new Thread(new Runnable() {
+        public void run()
+        {
+          try
+          {
+            work(address, queue, done, counts);
+          }
+          finally
+          {
+            alive.decrementAndGet();
+          }
+        }}, "tile-coordinator-" + i);
+      connections[i].setDaemon(true);
+      connections[i].start();
+    }
+
+    try
+    {
+      while (!done.await(100, TimeUnit.MILLISECONDS))
+        if (alive.get() == 0)
+          throw new IOException(done.getCount() + " tiles left and no worker left to render them.");
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while rendering.");
+    }
+    finally
+    {
+      for (Thread t : connections)
+        t.interrupt();
+    }
+    return counts;
+  }
+
+  //work
+  //runs one worker connection until there are no tiles left or the worker fails
+  private void work(InetSocketAddress address, BlockingDeque<int[]> queue, CountDownLatch done, int[] counts)
+  {
+    Socket socket = new Socket();
+    int[] tile = null;
+    try
+    {
+      socket.connect(address, timeout);
+      socket.setSoTimeout(timeout);
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      while (done.getCount() > 0)
+      {
+        tile = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (tile == null)
+          continue; //the rest may still be retried by a failing worker
+
+        out.writeInt(size);
+        out.writeDouble(scale);
+        out.writeDouble(centerReal);
+        out.writeDouble(centerImag);
+        out.writeInt(complexity);
+        out.writeInt(limit);
+        out.writeInt(precision.ordinal());
+        for (int v : tile)
+          out.writeInt(v);
+        out.flush();
+
+        int length = in.readInt();
+        if (length < 0 || length > TileWorker.maxCompressed(tile[2] * tile[3]))
+          throw new IOException("Bad tile length " + length + ".");
+        byte[] data = new byte[length];
+        in.readFully(data);
+        int[] region = TileWorker.decompress(data, tile[2] * tile[3]);
+        for (int y = 0; y < tile[3]; y++)
+          System.arraycopy(region, y * tile[2], counts, (tile[1] + y) * size + tile[0], tile[2]);
+        tile = null;
+        done.countDown();
+      }
+    }
+    catch (IOException e)
+    {
+      //the worker died or stalled: its tile is given to the next free connection
+      retry(queue, tile);
+    }
+    catch (RuntimeException e)
+    {
+      //the worker sent a reply that cannot be decoded; the tile must not be lost with it
+      retry(queue, tile);
+    }
+    catch (InterruptedException e)
+    {
+      //render is over
+    }
+    finally
+    {
+      try {socket.close();} catch (IOException e) {}
+    }
+  }
+
+  //retry
+  //puts back the tile of a failed connection, if it had one, for the next free connection
+  private void retry(BlockingDeque<int[]> queue, int[] tile)
+  {
+    if (tile != null)
+    {
+      retries.incrementAndGet();
+      queue.addFirst(tile);
+    }
+  }
+
+  //launch
+  //starts a TileWorker in a new JVM on this machine, with the same class path
+  //@return the worker process; its port is given by port(process)
+  public static Process launch() throws IOException
+  {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "TileWorker", "0");
+    //only the first line of stdout is ever read, so errors must not pile up behind it
+    builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+    return builder.start();
+  }
+
+  //port
+  //reads the port announced by a worker started with launch
+  //@param worker the worker process
+  //@return the port it listens on
+  public static int port(Process worker) throws IOException
+  {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(worker.getInputStream()));
+    String line = reader.readLine();
+    if (line == null || !line.startsWith("listening on "))
+      throw new IOException("Worker did not start: " + line);
+    return Integer.parseInt(line.substring("listening on ".length()).trim());
+  }
+
+  //main
+  //usage: TileCoordinator <size> <scale> <complexity> <file.png> (-local <workers> | host:port...)
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length < 5 || (args[4].equals("-local") && args.length < 6))
+    {
+      System.err.println("usage: TileCoordinator <size> <scale> <complexity> <file.png> (-local <workers> | host:port...)");
+      System.exit(1);
+    }
+    int size = Integer.parseInt(args[0]);
+    TileCoordinator coordinator = new TileCoordinator(size, Double.parseDouble(args[1]), Integer.parseInt(args[2]));
+    List<Process> local = new ArrayList<Process>();
+    try
+    {
+      if (args[4].equals("-local"))
+      {
+        //the local workers share this machine's cores between them
+        int n = Integer.parseInt(args[5]);
+        if (n < 1)
+          throw new IllegalArgumentException("At least one local worker is required.");
+        int connections = Math.max(1, Runtime.getRuntime().availableProcessors() / n);
+        for (int i = 0; i < n; i++)
+        {
+          Process p = launch();
+          local.add(p);
+          coordinator.addWorker("localhost", port(p), connections);
+        }
+      }
+      else
+      {
+        for (int i = 4; i < args.length; i++)
+        {
+          String[] address = args[i].split(":");
+          coordinator.addWorker(address[0], Integer.parseInt(address[1]), 1);
+        }
+      }
+
+      long start = System.nanoTime();
+      int[] counts = coordinator.render();
+      System.out.printf("rendered in %.2f s, %d tiles retried%n", (System.nanoTime() - start) / 1e9, coordinator.getRetries());
+      ImageIO.write(FractalRenderer.toImage(counts, size, coordinator.limit), "png", new File(args[3]));
+    }
+    finally
+    {
+      for (Process p : local)
+        p.destroy();
+    }
+  }
+
+}
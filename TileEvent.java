@@ -0,0 +1,31 @@
+/* TileEvent.java
+ * JDK Flight Recorder event committed for every tile computed by FractalRenderer.
+ * It is recorded on the worker thread, so tiles show up on that thread's timeline.
+ */
+
+import jdk.jfr.*;
+
+@Name("fractal.Tile")
+@Label("Fractal Tile")
+@Category("Fractal")
+@Description("One tile of a fractal render")
+public class TileEvent extends Event
+{
+  @Label("X")
+  int x;
+
+  @Label("Y")
+  int y;
+
+  @Label("Width")
+  int width;
+
+  @Label("Height")
+  int height;
+
+  @Label("Precision")
+  String precision;
+
+  @Label("Iterations")
+  long iterations;
+}
@@ -0,0 +1,173 @@
+/* TileWorker.java
+ * Serves tile jobs for TileCoordinator over TCP.
+ * Each connection carries a sequence of jobs; every job describes a view and a
+ * rectangle of it, and is answered with the deflated iteration counts of that
+ * rectangle, computed with FractalRenderer.
+ * On startup the worker prints "listening on <port>", so that a coordinator
+ * launching it with port 0 can find it.
+ */
+
+import java.io.*;
+import java.net.*;
+import java.util.zip.*;
+
+public class TileWorker
+{
+  //largest tile accepted, in pixels, so a bad request cannot exhaust the heap
+  static final int MAX_TILE_PIXELS = 1 << 22;
+
+  //instance variables
+  private ServerSocket server;
+
+  //constructors
+
+  //takes the port to listen on; 0 picks a free one
+  public TileWorker(int port) throws IOException
+  {
+    server = new ServerSocket(port);
+  }
+
+  //getPort
+  //@return the port this worker listens on
+  public int getPort() {return server.getLocalPort();}
+
+  //serve
+  //accepts connections until the server socket is closed, each one on its own thread
+  public void serve() throws IOException
+  {
+    while (true)
+    {
+      final Socket socket = server.accept();
+      Thread t = new Thread(new Runnable() {
+        public void run()
+        {
+          try
+          {
+            handle(socket);
+          }
+          catch (IOException e)
+          {
+            //the coordinator went away; it will retry the tile elsewhere
+          }
+          catch (RuntimeException e)
+          {
+            //a job this worker cannot render, e.g. a region outside its view; dropping
+            //the connection makes the coordinator hand the tile to another worker
+            System.err.println("Rejected job: " + e);
+          }
+          finally
+          {
+            try {socket.close();} catch (IOException e) {}
+          }
+        }}, "tile-worker-" + socket.getPort());
+      t.setDaemon(true);
+      t.start();
+    }
+  }
+
+  //handle
+  //answers the jobs of one connection until it is closed
+  private void handle(Socket socket) throws IOException
+  {
+    socket.setTcpNoDelay(true);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    while (true)
+    {
+      int size;
+      try
+      {
+        size = in.readInt();
+      }
+      catch (EOFException e)
+      {
+        return; //clean end of the connection
+      }
+      double scale = in.readDouble();
+      double re = in.readDouble();
+      double im = in.readDouble();
+      int complexity = in.readInt();
+      int limit = in.readInt();
+      int precision = in.readInt();
+      int x0 = in.readInt(), y0 = in.readInt(), w = in.readInt(), h = in.readInt();
+      if ((long) w * h > MAX_TILE_PIXELS)
+        throw new IOException("Tile too large.");
+      if (precision < 0 || precision >= FractalRenderer.Precision.values().length)
+        throw new IOException("Unknown precision.");
+
+      FractalRenderer renderer = new FractalRenderer(size, scale, complexity);
+      renderer.setCenter(re, im);
+      renderer.setLimit(limit);
+      renderer.setPrecision(FractalRenderer.Precision.values()[precision]);
+      byte[] tile = compress(renderer.renderRegion(x0, y0, w, h));
+      out.writeInt(tile.length);
+      out.write(tile);
+      out.flush();
+    }
+  }
+
+  //compress
+  //deflates a tile of counts. each count is stored as its difference from the
+  //previous one, which turns the long flat runs of a tile into runs of zeros
+  //@param counts the counts of the tile
+  //@return the compressed bytes
+  static byte[] compress(int[] counts) throws IOException
+  {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    //a Deflater passed in is not ended by close, so its native memory is released here
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try
+    {
+      DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater));
+      int previous = 0;
+      for (int c : counts)
+      {
+        out.writeInt(c - previous);
+        previous = c;
+      }
+      out.close();
+    }
+    finally
+    {
+      deflater.end();
+    }
+    return bytes.toByteArray();
+  }
+
+  //maxCompressed
+  //@param n the number of counts in a tile
+  //@return an upper bound on the length of compress for that tile: four bytes a count,
+  //plus the few bytes deflate adds per stored block and for its header
+  static long maxCompressed(int n)
+  {
+    return 4L * n + 5L * (4L * n / 16383 + 1) + 64;
+  }
+
+  //decompress
+  //reverses compress
+  //@param data the compressed bytes, n the number of counts in the tile
+  //@return the counts of the tile
+  static int[] decompress(byte[] data, int n) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+    int[] counts = new int[n];
+    int previous = 0;
+    for (int i = 0; i < n; i++)
+    {
+      previous += in.readInt();
+      counts[i] = previous;
+    }
+    return counts;
+  }
+
+  //main
+  //usage: TileWorker [port]
+  public static void main(String[] args) throws IOException
+  {
+    TileWorker worker = new TileWorker(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+    System.out.println("listening on " + worker.getPort());
+    System.out.flush();
+    worker.serve();
+  }
+
+}
@@ -0,0 +1,69 @@
+/* BenchmarkRunner.java
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, but turns on
+ * the GC profiler (allocation rate) and writes the results as JSON unless told
+ * otherwise, so that runs on different commits can be compared.
+ */
+
+package benchmarks;
+
+import org.openjdk.jmh.profile.*;
+import org.openjdk.jmh.results.format.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+public class BenchmarkRunner
+{
+  private static final String RESULT = "jmh-result.json";
+
+  public static void main(String[] args) throws Exception
+  {
+    CommandLineOptions cmd;
+    try
+    {
+      cmd = new CommandLineOptions(args);
+    }
+    catch (CommandLineOptionException e)
+    {
+      System.err.println("Error parsing command line: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+
+    //the options that only print something, handled as org.openjdk.jmh.Main does
+    Runner listing = new Runner(cmd);
+    if (cmd.shouldHelp())
+    {
+      cmd.showHelp();
+      return;
+    }
+    if (cmd.shouldList())
+    {
+      listing.list();
+      return;
+    }
+    if (cmd.shouldListWithParams())
+    {
+      listing.listWithParams(cmd);
+      return;
+    }
+    if (cmd.shouldListProfilers())
+    {
+      cmd.listProfilers();
+      return;
+    }
+    if (cmd.shouldListResultFormats())
+    {
+      cmd.listResultFormats();
+      return;
+    }
+
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+    if (cmd.getProfilers().isEmpty())
+      builder.addProfiler(GCProfiler.class);
+    if (!cmd.getResultFormat().hasValue())
+      builder.resultFormat(ResultFormatType.JSON);
+    if (!cmd.getResult().hasValue())
+      builder.result(RESULT);
+    new Runner(builder.build()).run();
+  }
+}
@@ -0,0 +1,72 @@
+/* ComplexMathBenchmark.java
+ * Cost of the ComplexMath primitives used by the reference path.
+ * Run with -prof gc to see the allocation of the Complex results.
+ */
+
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComplexMathBenchmark
+{
+  //the exponent, a state of its own so only pow runs once per value
+  @State(Scope.Thread)
+  public static class Power
+  {
+    @Param({"2", "3", "5"})
+    public int raise;
+  }
+
+  //not final, so the JIT cannot fold the operands
+  private Object a, b;
+
+  @Setup
+  public void setup() throws Throwable
+  {
+    a = (Object) Targets.NEW_COMPLEX.invokeExact(0.3, -0.7);
+    b = (Object) Targets.NEW_COMPLEX.invokeExact(-1.1, 0.4);
+  }
+
+  @Benchmark
+  public Object multiply() throws Throwable
+  {
+    return (Object) Targets.MULTIPLY.invokeExact(a, b);
+  }
+
+  @Benchmark
+  public Object pow(Power p) throws Throwable
+  {
+    return (Object) Targets.POW.invokeExact(a, p.raise);
+  }
+
+  @Benchmark
+  public double mag() throws Throwable
+  {
+    return (double) Targets.MAG.invokeExact(a);
+  }
+
+  @Benchmark
+  public Object sin() throws Throwable
+  {
+    return (Object) Targets.SIN.invokeExact(a);
+  }
+
+  @Benchmark
+  public Object cos() throws Throwable
+  {
+    return (Object) Targets.COS.invokeExact(a);
+  }
+
+  @Benchmark
+  public Object tan() throws Throwable
+  {
+    return (Object) Targets.TAN.invokeExact(a);
+  }
+}
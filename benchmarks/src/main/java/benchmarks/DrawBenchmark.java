@@ -0,0 +1,68 @@
+/* DrawBenchmark.java
+ * Full renders: the single-threaded reference Fractal.draw at several sizes,
+ * and the tiled FractalRenderer at several sizes and thread counts.
+ */
+
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DrawBenchmark
+{
+  private static final double SCALE = 4;
+  private static final int COMPLEXITY = 3;
+
+  @State(Scope.Thread)
+  public static class Reference
+  {
+    @Param({"64", "128", "256"})
+    public int size;
+
+    private Object fractal;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+      fractal = (Object) Targets.NEW_FRACTAL.invokeExact(size, SCALE, COMPLEXITY);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Tiled
+  {
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Object renderer;
+
+    @Setup
+    public void setup() throws Throwable
+    {
+      renderer = (Object) Targets.NEW_RENDERER.invokeExact(size, SCALE, COMPLEXITY);
+      Targets.SET_THREADS.invokeExact(renderer, threads);
+      //pinned, so results stay comparable whatever the renderer's default precision is
+      Targets.SET_PRECISION.invokeExact(renderer, Targets.precision("DOUBLE"));
+    }
+  }
+
+  @Benchmark
+  public Object draw(Reference state) throws Throwable
+  {
+    return (Object) Targets.DRAW.invokeExact(state.fractal);
+  }
+
+  @Benchmark
+  public int[] render(Tiled state) throws Throwable
+  {
+    return (int[]) Targets.RENDER.invokeExact(state.renderer);
+  }
+}
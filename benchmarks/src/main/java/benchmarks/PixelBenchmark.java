@@ -0,0 +1,83 @@
+/* PixelBenchmark.java
+ * Per-pixel cost of the recursive reference path (Fractal.checkPoint) and of
+ * the primitive kernels (Fractal.escapeTime, escapeTimeFloat), for each complexity.
+ * Every invocation iterates the same grid of points across the default view,
+ * and the score is reported per point.
+ */
+
+package benchmarks;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PixelBenchmark
+{
+  private static final int SIDE = 16;
+  private static final int POINTS = SIDE * SIDE;
+  private static final double SCALE = 4;
+  private static final int LIMIT = 1024;
+
+  @Param({"2", "3", "4", "5"})
+  public int complexity;
+
+  private Object fractal;
+  private double[] re, im;
+  private float[] reFloat, imFloat;
+  private Object[] z;
+
+  @Setup
+  public void setup() throws Throwable
+  {
+    fractal = (Object) Targets.NEW_FRACTAL.invokeExact(SIDE, SCALE, complexity);
+    re = new double[POINTS];
+    im = new double[POINTS];
+    z = new Object[POINTS];
+    reFloat = new float[POINTS];
+    imFloat = new float[POINTS];
+    for (int i = 0; i < POINTS; i++)
+    {
+      //same mapping as Fractal.draw
+      re[i] = -SCALE/2 + SCALE*(i % SIDE)/SIDE;
+      im[i] = -SCALE/2 + SCALE*(i / SIDE)/SIDE;
+      z[i] = (Object) Targets.NEW_COMPLEX.invokeExact(re[i], im[i]);
+      reFloat[i] = (float) re[i];
+      imFloat[i] = (float) im[i];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int checkPoint() throws Throwable
+  {
+    int sum = 0;
+    for (int i = 0; i < POINTS; i++)
+      sum += (int) Targets.CHECK_POINT.invokeExact(fractal, z[i], 0);
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int escapeTime() throws Throwable
+  {
+    int sum = 0;
+    for (int i = 0; i < POINTS; i++)
+      sum += (int) Targets.ESCAPE_TIME.invokeExact(re[i], im[i], complexity, LIMIT);
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(POINTS)
+  public int escapeTimeFloat() throws Throwable
+  {
+    int sum = 0;
+    for (int i = 0; i < POINTS; i++)
+      sum += (int) Targets.ESCAPE_TIME_FLOAT.invokeExact(reFloat[i], imFloat[i], complexity, LIMIT);
+    return sum;
+  }
+}
@@ -0,0 +1,123 @@
+/* Targets.java
+ * Method handles onto the Fractal classes.
+ * Fractal lives in the default package, which JMH refuses for benchmarks and
+ * which no named package can import, so the benchmarks reach it through these
+ * handles. They are static final, so the JIT inlines them like direct calls.
+ */
+
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+
+final class Targets
+{
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  static final Class<?> COMPLEX = load("Complex");
+  static final Class<?> COMPLEX_MATH = load("ComplexMath");
+  static final Class<?> FRACTAL = load("Fractal");
+  static final Class<?> RENDERER = load("FractalRenderer");
+  static final Class<?> PRECISION = load("FractalRenderer$Precision");
+
+  //new Complex(re, im): (double, double) Object
+  static final MethodHandle NEW_COMPLEX = constructor(COMPLEX, double.class, double.class);
+
+  //ComplexMath primitives: (Object, Object) Object, (Object, int) Object, (Object) double, (Object) Object
+  static final MethodHandle MULTIPLY = math("multiply", COMPLEX, COMPLEX, COMPLEX);
+  static final MethodHandle POW = math("pow", COMPLEX, COMPLEX, int.class);
+  static final MethodHandle MAG = math("mag", double.class, COMPLEX);
+  static final MethodHandle SIN = math("sin", COMPLEX, COMPLEX);
+  static final MethodHandle COS = math("cos", COMPLEX, COMPLEX);
+  static final MethodHandle TAN = math("tan", COMPLEX, COMPLEX);
+
+  //new Fractal(size, scale, complexity): (int, double, int) Object
+  static final MethodHandle NEW_FRACTAL = constructor(FRACTAL, int.class, double.class, int.class);
+  //fractal.draw(): (Object) Object
+  static final MethodHandle DRAW = method(FRACTAL, "draw", Object.class);
+  //fractal.checkPoint(z, count), the reference per-pixel path: (Object, Object, int) int
+  static final MethodHandle CHECK_POINT = method(FRACTAL, "checkPoint", int.class, COMPLEX, int.class);
+  //Fractal.escapeTime(re, im, complexity, limit), the primitive per-pixel path: (double, double, int, int) int
+  static final MethodHandle ESCAPE_TIME = method(FRACTAL, "escapeTime", int.class, double.class, double.class, int.class, int.class);
+  //Fractal.escapeTimeFloat(re, im, complexity, limit), the float preview path: (float, float, int, int) int
+  static final MethodHandle ESCAPE_TIME_FLOAT = method(FRACTAL, "escapeTimeFloat", int.class, float.class, float.class, int.class, int.class);
+
+  //new FractalRenderer(size, scale, complexity): (int, double, int) Object
+  static final MethodHandle NEW_RENDERER = constructor(RENDERER, int.class, double.class, int.class);
+  //renderer.setThreads(threads): (Object, int) void
+  static final MethodHandle SET_THREADS = method(RENDERER, "setThreads", void.class, int.class);
+  //renderer.setPrecision(precision): (Object, Object) void
+  static final MethodHandle SET_PRECISION = method(RENDERER, "setPrecision", void.class, PRECISION);
+  //renderer.render(): (Object) int[]
+  static final MethodHandle RENDER = method(RENDERER, "render", int[].class);
+
+  private Targets()
+  {
+
+  }
+
+  //@return the FractalRenderer.Precision constant with the given name
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object precision(String name)
+  {
+    return Enum.valueOf((Class) PRECISION, name);
+  }
+
+  private static Class<?> load(String name)
+  {
+    try
+    {
+      return Class.forName(name);
+    }
+    catch (ClassNotFoundException e)
+    {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  //erases every class of the Fractal sources to Object, so call sites can be written here
+  private static MethodHandle erase(MethodHandle h)
+  {
+    MethodType type = h.type();
+    for (int i = 0; i < type.parameterCount(); i++)
+      if (!type.parameterType(i).isPrimitive() && !type.parameterType(i).isArray())
+        type = type.changeParameterType(i, Object.class);
+    if (!type.returnType().isPrimitive() && !type.returnType().isArray())
+      type = type.changeReturnType(Object.class);
+    return h.asType(type);
+  }
+
+  private static MethodHandle constructor(Class<?> c, Class<?>... params)
+  {
+    try
+    {
+      return erase(LOOKUP.unreflectConstructor(c.getConstructor(params)));
+    }
+    catch (ReflectiveOperationException e)
+    {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private static MethodHandle math(String name, Class<?> ret, Class<?>... params)
+  {
+    return method(COMPLEX_MATH, name, ret, params);
+  }
+
+  //finds a method of any visibility; the Fractal classes are all in the unnamed module
+  private static MethodHandle method(Class<?> c, String name, Class<?> ret, Class<?>... params)
+  {
+    try
+    {
+      Method m = c.getDeclaredMethod(name, params);
+      if (m.getReturnType() != ret && !(ret == Object.class && !m.getReturnType().isPrimitive()))
+        throw new NoSuchMethodException(c.getName() + "." + name + " returns " + m.getReturnType());
+      m.setAccessible(true);
+      return erase(LOOKUP.unreflect(m));
+    }
+    catch (ReflectiveOperationException e)
+    {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}